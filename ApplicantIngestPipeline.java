@@ -0,0 +1,937 @@
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+// ===== ENUMS =====
+// Where a drop file goes once it leaves the pipeline
+enum IngestOutcome {
+    PROCESSED, // ingested now or earlier; archived under processed/
+    FAILED,    // the file itself could not be read; moved to failed/
+    RETRY,     // our own write failed; offered again after a back-off
+    HOLD       // persisting is stopped; left in place until restart
+}
+
+// ===== PIPELINE ITEMS =====
+class DropFile {
+    final Path path;
+    final String name;
+    final String key; // SHA-256 of the content, so a re-dropped copy is recognised however it was copied
+
+    private DropFile(Path path, String key) {
+        this.path = path;
+        this.name = path.getFileName().toString();
+        this.key = key;
+    }
+
+    static DropFile of(Path path) throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM ships SHA-256
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sha.update(buf, 0, n);
+            }
+        }
+        return new DropFile(path, String.format("%064x", new BigInteger(1, sha.digest())));
+    }
+
+    String archivedName() {
+        return archivedName(name, key);
+    }
+
+    // Name under processed/ and failed/: the hash keeps different files that
+    // share a name apart, while a re-dropped copy lands on its original
+    static String archivedName(String name, String key) {
+        String base = name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+        return base + "-" + key.substring(0, 12) + ".csv";
+    }
+}
+
+class IngestItem {
+    enum Kind { FILE_START, RECORD, FILE_END, FILE_ABORT }
+
+    final Kind kind;
+    final DropFile file;
+    final Applicant applicant;
+
+    // Filled in by the score stage
+    double dti;
+    RiskCategory risk;
+    int flags;
+
+    IngestItem(Kind kind, DropFile file, Applicant applicant) {
+        this.kind = kind;
+        this.file = file;
+        this.applicant = applicant;
+    }
+}
+
+// ===== STAGE BASE CLASS =====
+// Each stage consumes one item at a time and publishes into its own bounded
+// buffer. submit() blocks while the next stage's buffer is full, so a slow
+// stage pushes back all the way to the directory watcher.
+abstract class IngestStage<T, R> extends SubmissionPublisher<R>
+        implements Flow.Processor<T, R> {
+
+    final String name;
+    private Flow.Subscription subscription;
+
+    // SubmissionPublisher runs its subscriber on the executor, so this is
+    // the next stage's thread, not this one's
+    IngestStage(String name, Executor nextStage, int capacity) {
+        super(nextStage, capacity);
+        this.name = name;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(T item) {
+        try {
+            handle(item);
+        } catch (RuntimeException e) {
+            System.out.println("[" + name + "] Error: " + e.getMessage());
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        close();
+    }
+
+    protected abstract void handle(T item);
+}
+
+// ===== STAGES =====
+class ParseStage extends IngestStage<DropFile, IngestItem> {
+    final LongAdder lines = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    ParseStage(Executor nextStage, int capacity) {
+        super("parse", nextStage, capacity);
+    }
+
+    // Streams the file line by line so a large file never sits in memory.
+    // Uses the platform charset like the FileReader loaders; InputStreamReader
+    // replaces undecodable bytes instead of failing the whole file.
+    @Override
+    protected void handle(DropFile file) {
+        submit(new IngestItem(IngestItem.Kind.FILE_START, file, null));
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(file.path), Charset.defaultCharset()))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.increment();
+                Applicant a;
+                try {
+                    a = CreditScoreApp.applicantFromCsv(line);
+                } catch (RuntimeException ex) {
+                    a = null;
+                }
+                if (a == null) {
+                    rejected.increment();
+                    continue;
+                }
+                submit(new IngestItem(IngestItem.Kind.RECORD, file, a));
+            }
+            submit(new IngestItem(IngestItem.Kind.FILE_END, file, null));
+        } catch (IOException e) {
+            System.out.println("[parse] Error while reading " + file.path + ": " + e.getMessage());
+            submit(new IngestItem(IngestItem.Kind.FILE_ABORT, file, null));
+        }
+    }
+}
+
+class ScoreStage extends IngestStage<IngestItem, IngestItem> {
+    final LongAdder records = new LongAdder();
+
+    ScoreStage(Executor nextStage, int capacity) {
+        super("score", nextStage, capacity);
+    }
+
+    @Override
+    protected void handle(IngestItem item) {
+        if (item.kind == IngestItem.Kind.RECORD) {
+            Applicant a = item.applicant;
+            item.dti = a.calculateDTI();
+            item.risk = a.evaluateRisk();
+            item.flags = a.calculateRiskFlags();
+            records.increment();
+        }
+        submit(item);
+    }
+}
+
+// ===== LEDGER (exactly-once across restarts) =====
+// Append-only log of tab separated lines, keyed by content hash:
+//   BEGIN <profilesOffset> <scoresOffset> <key>
+//   DONE  <key> <file name>
+//   ABORT <key>
+// Files are persisted one after another, so only a BEGIN that is the last
+// entry can be unfinished. On startup the output files (which live next to
+// the ledger) are truncated back to its offsets, and the ledger is rewritten
+// with just the DONE keys of files still on disk.
+class IngestLedger {
+    private final Path ledgerFile;
+    private final Map<String, String> done = new ConcurrentHashMap<>(); // key -> file name
+    private FileChannel channel;
+
+    // Last BEGIN, if nothing came after it
+    private String pendingKey;
+    private long pendingProfilesOffset;
+    private long pendingScoresOffset;
+
+    IngestLedger(Path ledgerFile) {
+        this.ledgerFile = ledgerFile;
+    }
+
+    void open(Path profilesFile, Path scoresFile, Path dropDir, Path processedDir)
+            throws IOException {
+        load();
+        if (pendingKey != null) {
+            truncate(profilesFile, pendingProfilesOffset);
+            truncate(scoresFile, pendingScoresOffset);
+            System.out.println("[ledger] Rolled back partial ingest of " + pendingKey);
+        }
+
+        compact(dropDir, processedDir);
+        channel = FileChannel.open(ledgerFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    boolean isDone(String key) {
+        return done.containsKey(key);
+    }
+
+    void begin(String key, long profilesOffset, long scoresOffset) throws IOException {
+        append("BEGIN\t" + profilesOffset + "\t" + scoresOffset + "\t" + key);
+    }
+
+    void done(String key, String name) throws IOException {
+        append("DONE\t" + key + "\t" + name);
+        done.put(key, name);
+    }
+
+    void abort(String key) throws IOException {
+        append("ABORT\t" + key);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    // Length of the profiles file that belongs to committed files. Data is
+    // only written after a BEGIN, so if the ledger didn't change while the
+    // profiles file was measured, nothing uncommitted was in it.
+    static long committedLength(Path ledgerFile, Path profilesFile) throws IOException {
+        while (true) {
+            long before = Files.exists(ledgerFile) ? Files.size(ledgerFile) : -1;
+            IngestLedger ledger = new IngestLedger(ledgerFile);
+            ledger.load();
+            if (ledger.pendingKey != null) {
+                return ledger.pendingProfilesOffset;
+            }
+            long size = Files.exists(profilesFile) ? Files.size(profilesFile) : 0;
+            long after = Files.exists(ledgerFile) ? Files.size(ledgerFile) : -1;
+            if (before == after) {
+                return size;
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(ledgerFile)) return;
+
+        // A crash during append leaves a last line without a newline; that
+        // entry never completed, so it is ignored
+        boolean torn = !endsWithNewline(ledgerFile);
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(ledgerFile), StandardCharsets.UTF_8))) {
+            String line = br.readLine();
+            while (line != null) {
+                String next = br.readLine();
+                if (next == null && torn) break;
+                parse(line);
+                line = next;
+            }
+        }
+    }
+
+    // The file name comes last in DONE, so a tab inside it stays part of it
+    private void parse(String line) {
+        String[] p = line.split("\t", 2);
+        try {
+            if (p[0].equals("BEGIN") && p.length == 2) {
+                String[] f = p[1].split("\t", 3);
+                if (f.length == 3) {
+                    pendingProfilesOffset = Long.parseLong(f[0]);
+                    pendingScoresOffset = Long.parseLong(f[1]);
+                    pendingKey = f[2];
+                    return;
+                }
+            } else if (p[0].equals("DONE") && p.length == 2) {
+                String[] f = p[1].split("\t", 2);
+                if (f.length == 2) {
+                    done.put(f[0], f[1]);
+                    pendingKey = null;
+                    return;
+                }
+            } else if (p[0].equals("ABORT") && p.length == 2) {
+                pendingKey = null;
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.out.println("[ledger] Skipping malformed entry: " + line);
+    }
+
+    // A DONE key is only needed while its file is still around to be
+    // re-dropped or moved, so anything else is forgotten
+    private void compact(Path dropDir, Path processedDir) throws IOException {
+        done.entrySet().removeIf(e ->
+                !Files.exists(dropDir.resolve(e.getValue())) &&
+                !Files.exists(processedDir.resolve(
+                        DropFile.archivedName(e.getValue(), e.getKey()))));
+
+        Path tmp = ledgerFile.resolveSibling(ledgerFile.getFileName() + ".tmp");
+        try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, String> e : done.entrySet()) {
+                write(fc, "DONE\t" + e.getKey() + "\t" + e.getValue());
+            }
+            fc.force(true);
+        }
+        Files.move(tmp, ledgerFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        // Otherwise the old ledger, with its open BEGIN, can come back after
+        // a power loss and roll back files committed since
+        syncDirectory(ledgerFile.toAbsolutePath().getParent());
+    }
+
+    private void append(String line) throws IOException {
+        write(channel, line);
+        channel.force(true);
+    }
+
+    static void syncDirectory(Path dir) {
+        try (FileChannel fc = FileChannel.open(dir, StandardOpenOption.READ)) {
+            fc.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename still happened
+        }
+    }
+
+    private static void write(FileChannel fc, String line) throws IOException {
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(line + "\n");
+        while (buf.hasRemaining()) {
+            fc.write(buf);
+        }
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (fc.size() == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            fc.read(last, fc.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        if (!Files.exists(file)) return;
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (fc.size() > size) {
+                fc.truncate(size);
+                fc.force(true);
+            }
+        }
+    }
+}
+
+// ===== OUTPUT FILE =====
+// Appends lines through the channel with our own buffer, so after a failed
+// write the unwritten text can be thrown away instead of leaking into the
+// next file's region.
+class IngestOutput {
+    private static final int FLUSH_CHARS = 64 * 1024;
+
+    private final FileChannel channel;
+    private final StringBuilder pending = new StringBuilder();
+
+    IngestOutput(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    void appendLine(String line) throws IOException {
+        pending.append(line).append(System.lineSeparator());
+        if (pending.length() >= FLUSH_CHARS) flush();
+    }
+
+    // Same charset as the FileReader loaders
+    void flush() throws IOException {
+        ByteBuffer buf = Charset.defaultCharset().encode(CharBuffer.wrap(pending));
+        pending.setLength(0);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    void commit() throws IOException {
+        flush();
+        channel.force(true);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    void truncate(long size) throws IOException {
+        pending.setLength(0);
+        if (channel.size() > size) channel.truncate(size);
+        channel.force(true);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
+
+// Stops after a fixed number of bytes, so a reader never sees past the
+// committed part of a file that is still being appended to
+class BoundedInputStream extends FilterInputStream {
+    private long remaining;
+
+    BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) return -1;
+        int b = super.read();
+        if (b >= 0) remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) return -1;
+        int n = super.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) remaining -= n;
+        return n;
+    }
+}
+
+// ===== PERSIST STAGE =====
+// Profiles go to a file the menu and GUI loaders merge in, but never save
+// back; scores go to a separate file so the 8-column profile format stays
+// unchanged.
+class PersistStage implements Flow.Subscriber<IngestItem> {
+    private enum Mode { WRITE, SKIP, FAILED, HOLD }
+
+    final LongAdder records = new LongAdder();
+    final LongAdder filesCompleted = new LongAdder();
+
+    private final IngestLedger ledger;
+    private final IngestOutput profiles;
+    private final IngestOutput scores;
+    private final BiConsumer<DropFile, IngestOutcome> release;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+
+    // State of the file currently being written
+    private Mode mode;
+    private long profilesOffset;
+    private long scoresOffset;
+    private boolean broken; // a rollback failed; stop writing until restart
+
+    PersistStage(IngestLedger ledger, Path profilesFile, Path scoresFile,
+                 BiConsumer<DropFile, IngestOutcome> release) throws IOException {
+        this.ledger = ledger;
+        this.release = release;
+        profiles = new IngestOutput(profilesFile);
+        scores = new IngestOutput(scoresFile);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(IngestItem item) {
+        switch (item.kind) {
+            case FILE_START:
+                startFile(item.file);
+                break;
+            case RECORD:
+                writeRecord(item);
+                break;
+            case FILE_END:
+                finishFile(item.file);
+                break;
+            case FILE_ABORT:
+                // The source file itself could not be read; retrying won't help
+                if (mode == Mode.WRITE || mode == Mode.FAILED) {
+                    abortFile(item.file, IngestOutcome.FAILED);
+                } else {
+                    release.accept(item.file, mode == Mode.SKIP
+                            ? IngestOutcome.PROCESSED : IngestOutcome.HOLD);
+                }
+                break;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        System.out.println("[persist] Pipeline failed: " + throwable.getMessage());
+        shutdown();
+    }
+
+    @Override
+    public void onComplete() {
+        shutdown();
+    }
+
+    boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    private void startFile(DropFile file) {
+        if (broken) {
+            mode = Mode.HOLD;
+            return;
+        }
+        if (ledger.isDone(file.key)) {
+            mode = Mode.SKIP;
+            return;
+        }
+
+        mode = Mode.WRITE;
+        try {
+            profilesOffset = profiles.size();
+            scoresOffset = scores.size();
+            ledger.begin(file.key, profilesOffset, scoresOffset);
+        } catch (IOException e) {
+            System.out.println("[persist] Error: " + e.getMessage());
+            mode = Mode.FAILED;
+        }
+    }
+
+    private void writeRecord(IngestItem item) {
+        if (mode != Mode.WRITE) return;
+
+        Applicant a = item.applicant;
+        try {
+            profiles.appendLine(a.toCsv());
+            scores.appendLine(String.format(Locale.ROOT, "%s,%s,%.3f,%s,%d",
+                    a.name, a.bankName, item.dti, item.risk, item.flags));
+            records.increment();
+        } catch (IOException e) {
+            System.out.println("[persist] Error: " + e.getMessage());
+            mode = Mode.FAILED;
+        }
+    }
+
+    private void finishFile(DropFile file) {
+        if (mode == Mode.SKIP) {
+            release.accept(file, IngestOutcome.PROCESSED);
+            return;
+        }
+        if (mode == Mode.HOLD) {
+            release.accept(file, IngestOutcome.HOLD);
+            return;
+        }
+
+        if (mode == Mode.WRITE) {
+            try {
+                profiles.commit();
+                scores.commit();
+                ledger.done(file.key, file.name);
+                filesCompleted.increment();
+                System.out.println("[persist] Ingested " + file.name);
+                release.accept(file, IngestOutcome.PROCESSED);
+                return;
+            } catch (IOException e) {
+                System.out.println("[persist] Error: " + e.getMessage());
+            }
+        }
+        // Our own write failed, not the file
+        abortFile(file, IngestOutcome.RETRY);
+    }
+
+    // Drops whatever was written for this file
+    private void abortFile(DropFile file, IngestOutcome outcome) {
+        try {
+            profiles.truncate(profilesOffset);
+            scores.truncate(scoresOffset);
+            ledger.abort(file.key);
+            System.out.println("[persist] Skipped " + file.name);
+        } catch (IOException e) {
+            // The BEGIN entry is still open, so the next start rolls it back
+            System.out.println("[persist] Error while rolling back " + file.name +
+                               ": " + e.getMessage() + "; restart to recover");
+            broken = true;
+            outcome = IngestOutcome.HOLD;
+        }
+        release.accept(file, outcome);
+    }
+
+    private void shutdown() {
+        try {
+            profiles.close();
+            scores.close();
+            ledger.close();
+        } catch (IOException e) {
+            System.out.println("[persist] Error while closing: " + e.getMessage());
+        }
+        finished.countDown();
+    }
+}
+
+// ===== METRICS =====
+// Throughput is records handled per second since the previous report; queue
+// is the number of items buffered in front of the stage.
+class StageGauge {
+    final String name;
+    final LongAdder records;
+    final SubmissionPublisher<?> inbound;
+    final String queueUnit;
+    private long lastCount;
+
+    StageGauge(String name, LongAdder records, SubmissionPublisher<?> inbound,
+               String queueUnit) {
+        this.name = name;
+        this.records = records;
+        this.inbound = inbound;
+        this.queueUnit = queueUnit;
+    }
+
+    String report(double seconds) {
+        long count = records.sum();
+        double rate = (count - lastCount) / seconds;
+        lastCount = count;
+        return String.format("%s: %.1f rec/s queue=%d/%d %s", name, rate,
+                inbound.estimateMaximumLag(), inbound.getMaxBufferCapacity(), queueUnit);
+    }
+}
+
+// ===== MAIN PIPELINE CLASS =====
+public class ApplicantIngestPipeline {
+
+    // Output files live in the drop directory next to the ledger, so a
+    // rollback always truncates the files the ledger describes
+    static final String PROFILES_FILE = "ingested_profiles.txt";
+    static final String SCORES_FILE = "credit_scores.txt";
+    static final String LEDGER_FILE = ".ingest-ledger";
+    static final String LOCK_FILE = ".ingest-lock";
+    static final String PROCESSED_DIR = "processed";
+    static final String FAILED_DIR = "failed";
+
+    private static final int FILE_QUEUE_CAPACITY = 16;
+    private static final int RECORD_QUEUE_CAPACITY = 256;
+    private static final int REPORT_INTERVAL_SECONDS = 10;
+    private static final int RETRY_DELAY_SECONDS = 30;
+
+    private final Path dropDir;
+    private final Path processedDir;
+    private final Path failedDir;
+    private final FileChannel lockChannel; // held open so the lock lasts as long as we run
+    private final IngestLedger ledger;
+    private final SubmissionPublisher<DropFile> source;
+    private final ParseStage parseStage;
+    private final ScoreStage scoreStage;
+    private final PersistStage persistStage;
+    private final ScheduledExecutorService retries =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("ingest-retry"));
+    private final List<StageGauge> gauges = new ArrayList<>();
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+
+    public ApplicantIngestPipeline(Path dropDir) throws IOException {
+        this.dropDir = dropDir;
+        processedDir = dropDir.resolve(PROCESSED_DIR);
+        failedDir = dropDir.resolve(FAILED_DIR);
+        Files.createDirectories(processedDir);
+        Files.createDirectories(failedDir);
+
+        // Two pipelines on one drop directory would roll back each other's writes
+        lockChannel = FileChannel.open(dropDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("another pipeline is already using " + dropDir);
+        }
+
+        Path profilesFile = dropDir.resolve(PROFILES_FILE);
+        Path scoresFile = dropDir.resolve(SCORES_FILE);
+        ledger = new IngestLedger(dropDir.resolve(LEDGER_FILE));
+        ledger.open(profilesFile, scoresFile, dropDir, processedDir);
+
+        // Each executor is named after the stage it runs (see IngestStage)
+        source = new SubmissionPublisher<>(stageExecutor("parse"), FILE_QUEUE_CAPACITY);
+        parseStage = new ParseStage(stageExecutor("score"), RECORD_QUEUE_CAPACITY);
+        scoreStage = new ScoreStage(stageExecutor("persist"), RECORD_QUEUE_CAPACITY);
+        persistStage = new PersistStage(ledger, profilesFile, scoresFile, this::release);
+
+        source.subscribe(parseStage);
+        parseStage.subscribe(scoreStage);
+        scoreStage.subscribe(persistStage);
+
+        gauges.add(new StageGauge("parse", parseStage.lines, source, "files"));
+        gauges.add(new StageGauge("score", scoreStage.records, parseStage, "records"));
+        gauges.add(new StageGauge("persist", persistStage.records, scoreStage, "records"));
+    }
+
+    // Blocks watching the drop directory until the watch service is closed
+    public void run() throws IOException, InterruptedException {
+        ScheduledExecutorService reporter =
+                Executors.newSingleThreadScheduledExecutor(daemonThreads("ingest-metrics"));
+        reporter.scheduleAtFixedRate(this::printGauges, REPORT_INTERVAL_SECONDS,
+                REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watchService.close();
+                persistStage.awaitFinished(30, TimeUnit.SECONDS);
+            } catch (IOException | InterruptedException e) {
+                System.out.println("Error while stopping: " + e.getMessage());
+            }
+        }));
+
+        // Register before scanning so nothing dropped in between is missed
+        dropDir.register(watchService, ENTRY_CREATE);
+        scanDropDir();
+        System.out.println("Watching " + dropDir.toAbsolutePath() + " for *.csv files");
+
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        scanDropDir();
+                    } else {
+                        offer(dropDir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) break;
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        } finally {
+            retries.shutdownNow();
+            source.close();
+            reporter.shutdown();
+        }
+    }
+
+    private void scanDropDir() {
+        List<Path> sorted = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dropDir, "*.csv")) {
+            files.forEach(sorted::add);
+        } catch (IOException e) {
+            System.out.println("Could not list " + dropDir + ": " + e.getMessage());
+        }
+        sorted.sort(null);
+        for (Path p : sorted) {
+            offer(p);
+        }
+    }
+
+    // Only *.csv is picked up: upstream should write under another name and
+    // rename, so a half-written file is never read.
+    private void offer(Path path) {
+        if (!path.getFileName().toString().endsWith(".csv") || !Files.isRegularFile(path)) {
+            return;
+        }
+        if (!queued.add(path)) return;
+
+        DropFile file;
+        try {
+            file = DropFile.of(path); // reads the file once to hash it
+        } catch (IOException e) {
+            System.out.println("Could not read " + path + ": " + e.getMessage());
+            queued.remove(path);
+            return;
+        }
+        if (ledger.isDone(file.key)) {
+            release(file, IngestOutcome.PROCESSED);
+            return;
+        }
+        source.submit(file); // blocks while the parse queue is full
+    }
+
+    // Called once a file has left the pipeline
+    private void release(DropFile file, IngestOutcome outcome) {
+        switch (outcome) {
+            case PROCESSED:
+                archive(file, processedDir);
+                break;
+            case FAILED:
+                archive(file, failedDir);
+                break;
+            case RETRY:
+                try {
+                    retries.schedule(() -> offer(file.path), RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+                    System.out.println("Will retry " + file.name + " in " +
+                                       RETRY_DELAY_SECONDS + "s");
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    System.out.println("Leaving " + file.name + " in place, restart to ingest it");
+                }
+                break;
+            case HOLD:
+                System.out.println("Leaving " + file.name + " in place, restart to ingest it");
+                break;
+        }
+        queued.remove(file.path);
+    }
+
+    private void archive(DropFile file, Path targetDir) {
+        try {
+            // Same name only for the same content, so replacing loses nothing
+            Files.move(file.path, targetDir.resolve(file.archivedName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+            IngestLedger.syncDirectory(targetDir);
+            IngestLedger.syncDirectory(dropDir);
+        } catch (IOException e) {
+            System.out.println("Could not move " + file.path + ": " + e.getMessage());
+        }
+    }
+
+    private void printGauges() {
+        StringBuilder sb = new StringBuilder("[metrics] ");
+        for (int i = 0; i < gauges.size(); i++) {
+            if (i > 0) sb.append(" | ");
+            sb.append(gauges.get(i).report(REPORT_INTERVAL_SECONDS));
+        }
+        sb.append(" | files: ").append(persistStage.filesCompleted.sum())
+          .append(" rejected lines: ").append(parseStage.rejected.sum());
+        System.out.println(sb);
+    }
+
+    private static Executor stageExecutor(String stage) {
+        return Executors.newSingleThreadExecutor(daemonThreads("ingest-" + stage));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // The drop directory the loaders merge ingested profiles from
+    static Path defaultDropDir() {
+        return Paths.get(System.getProperty("ingest.dir", "incoming"));
+    }
+
+    // Reads committed rows only; rows of a file that is still being written
+    // (or was cut off by a crash) are left out
+    static List<Applicant> readIngestedProfiles(Path dropDir) throws IOException {
+        List<Applicant> applicants = new ArrayList<>();
+        Path file = dropDir.resolve(PROFILES_FILE);
+        if (!Files.exists(file)) return applicants;
+
+        long committed = IngestLedger.committedLength(dropDir.resolve(LEDGER_FILE), file);
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new BoundedInputStream(Files.newInputStream(file), committed),
+                Charset.defaultCharset()))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                try {
+                    Applicant a = CreditScoreApp.applicantFromCsv(line);
+                    if (a != null) {
+                        a.ingested = true;
+                        applicants.add(a);
+                    }
+                } catch (RuntimeException e) {
+                    // Skip lines that don't parse
+                }
+            }
+        }
+        return applicants;
+    }
+
+    public static void main(String[] args) {
+        Path dropDir = args.length > 0 ? Paths.get(args[0]) : defaultDropDir();
+        try {
+            Files.createDirectories(dropDir);
+            new ApplicantIngestPipeline(dropDir).run();
+        } catch (IOException e) {
+            System.out.println("Error while starting ingest: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
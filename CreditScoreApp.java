@@ -78,6 +78,9 @@ abstract class Applicant implements CreditScorable {
     protected double yearlyInterestRate;
     protected String bankName;
 
+    // Read from the ingest pipeline's output; never saved back to the data file
+    protected boolean ingested;
+
     public Applicant(String name, int age, double monthlyIncome,
                      EmploymentType employmentType, double loanAmount,
                      int years, double yearlyInterestRate, String bankName) {
@@ -326,6 +329,7 @@ public class CreditScoreApp {
     private static void saveToFile(List<Applicant> applicants) {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(DATA_FILE))) {
             for (Applicant a : applicants) {
+                if (a.ingested) continue;
                 bw.write(a.toCsv());
                 bw.newLine();
             }
@@ -350,10 +354,22 @@ public class CreditScoreApp {
         } catch (IOException e) {
             System.out.println("Error while loading: " + e.getMessage());
         }
+
+        // Merge in whatever the drop directory pipeline has ingested
+        try {
+            List<Applicant> ingested = ApplicantIngestPipeline.readIngestedProfiles(
+                    ApplicantIngestPipeline.defaultDropDir());
+            applicants.addAll(ingested);
+            if (!ingested.isEmpty()) {
+                System.out.println("Loaded " + ingested.size() + " ingested applicants");
+            }
+        } catch (IOException e) {
+            System.out.println("Error while loading ingested applicants: " + e.getMessage());
+        }
         return applicants;
     }
 
-    private static Applicant applicantFromCsv(String line) {
+    static Applicant applicantFromCsv(String line) {
         String[] p = line.split(",");
         if (p.length != 8) return null;
 
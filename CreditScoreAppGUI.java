@@ -225,6 +225,7 @@ public class CreditScoreAppGUI extends JFrame {
     private void handleSaveToFile(ActionEvent e) {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(DATA_FILE))) {
             for (Applicant a : applicants) {
+                if (a.ingested) continue;
                 bw.write(a.toCsv());
                 bw.newLine();
             }
@@ -245,11 +246,24 @@ public class CreditScoreAppGUI extends JFrame {
                     loaded.add(a);
                 }
             }
-            applicants = loaded; // replace current list
-            outputArea.append("Loaded " + applicants.size() + " applicants from " + DATA_FILE + "\n");
+            outputArea.append("Loaded " + loaded.size() + " applicants from " + DATA_FILE + "\n");
         } catch (IOException ex) {
             showError("Error while loading: " + ex.getMessage());
+            return; // keep the current list
         }
+
+        // Merge in whatever the drop directory pipeline has ingested
+        try {
+            List<Applicant> ingested = ApplicantIngestPipeline.readIngestedProfiles(
+                    ApplicantIngestPipeline.defaultDropDir());
+            loaded.addAll(ingested);
+            if (!ingested.isEmpty()) {
+                outputArea.append("Loaded " + ingested.size() + " ingested applicants\n");
+            }
+        } catch (IOException ex) {
+            showError("Error while loading ingested applicants: " + ex.getMessage());
+        }
+        applicants = loaded; // replace current list
     }
 
     // ===== Helper methods =====
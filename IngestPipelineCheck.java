@@ -0,0 +1,195 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+// Crash-recovery check for ApplicantIngestPipeline. Runs the pipeline as a
+// child process in a temp directory, kills it mid-file and checks that every
+// row ends up ingested exactly once. The temp directory is removed afterwards.
+//
+//   javac -encoding UTF-8 *.java && java IngestPipelineCheck
+public class IngestPipelineCheck {
+
+    private static final int ROWS = 400_000;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        Path work = Files.createTempDirectory("ingest-check");
+        try {
+            run(work);
+        } finally {
+            deleteTree(work);
+        }
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void run(Path work) throws Exception {
+        Path drop = work.resolve("incoming");
+        Path processed = drop.resolve(ApplicantIngestPipeline.PROCESSED_DIR);
+        Path profiles = drop.resolve(ApplicantIngestPipeline.PROFILES_FILE);
+        Path scores = drop.resolve(ApplicantIngestPipeline.SCORES_FILE);
+        Path ledger = drop.resolve(ApplicantIngestPipeline.LEDGER_FILE);
+        Files.createDirectories(drop);
+        System.out.println("Working in " + work);
+
+        // 1. kill -9 mid-file, then restart from another working directory
+        //    with a locale that uses a decimal comma
+        writeRows(drop, "big.csv", ROWS);
+        Process p = start(work, "a", drop);
+        waitFor(() -> size(profiles) > 0, 60);
+        p.destroyForcibly();
+        p.waitFor();
+        check(!Files.readString(ledger).contains("\tbig.csv"),
+                "pipeline was killed before big.csv was committed");
+        check(ApplicantIngestPipeline.readIngestedProfiles(drop).isEmpty(),
+                "loaders skip rows of an uncommitted file");
+
+        p = start(work, "b", drop, "-Duser.language=de", "-Duser.country=DE");
+        waitFor(() -> archived(processed, "big") == 1, 120);
+        Process second = start(work, "c", drop);
+        check(second.waitFor(30, TimeUnit.SECONDS),
+                "a second pipeline on the same drop directory refuses to start");
+        stop(p);
+        check(lines(profiles).size() == ROWS, "all rows ingested after kill -9");
+        check(distinctNames(profiles) == ROWS, "no row ingested twice after kill -9");
+        check(lines(scores).stream().allMatch(l -> l.split(",").length == 5),
+                "scores have 5 columns under a German locale");
+
+        // 2. torn ledger tail, plain re-copy of an ingested file, Latin-1 input
+        Files.write(ledger, "BEGIN\t0\t0\tz".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        Path copy = drop.resolve("again.tmp");
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(processed, "big-*.csv")) {
+            Files.copy(old.iterator().next(), copy);
+        }
+        Files.move(copy, drop.resolve("again.csv"));
+        Files.write(drop.resolve("latin.tmp"),
+                "José,30,50000.0,SALARIED,100000.0,5,0.08,SBI\n"
+                        .getBytes(StandardCharsets.ISO_8859_1));
+        Files.move(drop.resolve("latin.tmp"), drop.resolve("latin.csv"));
+
+        p = start(work, "b", drop);
+        waitFor(() -> archived(processed, "again") == 1 &&
+                      archived(processed, "latin") == 1, 60);
+        stop(p);
+        check(lines(profiles).size() == ROWS + 1,
+                "torn ledger entry ignored, re-drop skipped, Latin-1 row ingested");
+        check(ApplicantIngestPipeline.readIngestedProfiles(drop).size() == ROWS + 1,
+                "loaders see every ingested row");
+    }
+
+    private static void check(boolean ok, String what) {
+        System.out.println((ok ? "PASS " : "FAIL ") + what);
+        if (!ok) failures++;
+    }
+
+    // Written under another name and renamed, the way upstream should drop files
+    private static void writeRows(Path drop, String name, int rows) throws IOException {
+        Path tmp = drop.resolve(name + ".tmp");
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp)) {
+            for (int i = 0; i < rows; i++) {
+                bw.write("P" + i + ",30,50000.0,SALARIED,100000.0,5,0.08,SBI");
+                bw.newLine();
+            }
+        }
+        Files.move(tmp, drop.resolve(name));
+    }
+
+    private static Process start(Path work, String cwd, Path drop, String... jvmArgs)
+            throws IOException {
+        Path dir = Files.createDirectories(work.resolve(cwd));
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String a : jvmArgs) cmd.add(a);
+        cmd.add("-cp");
+        cmd.add(absoluteClassPath());
+        cmd.add("ApplicantIngestPipeline");
+        cmd.add(drop.toAbsolutePath().toString());
+        return new ProcessBuilder(cmd)
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(
+                        work.resolve("pipeline.log").toFile()))
+                .start();
+    }
+
+    // SIGTERM, so the shutdown hook drains the pipeline
+    private static void stop(Process p) throws InterruptedException {
+        p.destroy();
+        if (!p.waitFor(60, TimeUnit.SECONDS)) {
+            p.destroyForcibly();
+            check(false, "pipeline stopped within 60s");
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out after " + seconds + "s");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static String absoluteClassPath() {
+        List<String> parts = new ArrayList<>();
+        for (String s : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            parts.add(Paths.get(s).toAbsolutePath().toString());
+        }
+        return String.join(File.pathSeparator, parts);
+    }
+
+    private static int archived(Path processed, String base) {
+        int n = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(processed, base + "-*.csv")) {
+            for (Path ignored : files) n++;
+        } catch (IOException e) {
+            return 0;
+        }
+        return n;
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int distinctNames(Path file) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (Stream<String> s = Files.lines(file, StandardCharsets.ISO_8859_1)) {
+            s.forEach(l -> names.add(l.substring(0, l.indexOf(','))));
+        }
+        return names.size();
+    }
+}